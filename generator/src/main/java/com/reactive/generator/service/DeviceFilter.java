@@ -0,0 +1,123 @@
+package com.reactive.generator.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Numeric deviceId filter made of sorted, non-overlapping ranges.
+ * Expression examples: "1", "1,3,10", "1-100", "1-10,200-250".
+ * Empty/blank (or nothing parseable) => every device.
+ */
+public final class DeviceFilter {
+
+    private static final DeviceFilter ALL = new DeviceFilter(List.of());
+
+    private final List<IntRange> ranges;
+
+    private DeviceFilter(List<IntRange> ranges) {
+        this.ranges = ranges;
+    }
+
+    public static DeviceFilter all() {
+        return ALL;
+    }
+
+    public static DeviceFilter parse(String expr) {
+        List<IntRange> ranges = parseRanges(expr);
+        return ranges.isEmpty() ? ALL : new DeviceFilter(List.copyOf(ranges));
+    }
+
+    public boolean matchesAll() {
+        return ranges.isEmpty();
+    }
+
+    public boolean matches(String deviceId) {
+        if (matchesAll()) return true;
+
+        Integer v = deviceNo(deviceId);
+        return v != null && matches(v);
+    }
+
+    boolean matches(int deviceNo) {
+        for (IntRange range : ranges) {
+            if (deviceNo >= range.from && deviceNo <= range.to) return true;
+        }
+        return false;
+    }
+
+    List<IntRange> ranges() {
+        return ranges;
+    }
+
+    static Integer deviceNo(String deviceId) {
+        if (deviceId == null) return null;
+        try {
+            return Integer.parseInt(deviceId.trim());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (matchesAll()) return "*";
+
+        StringBuilder sb = new StringBuilder();
+        for (IntRange r : ranges) {
+            if (!sb.isEmpty()) sb.append(',');
+            sb.append(r.from);
+            if (r.to != r.from) sb.append('-').append(r.to);
+        }
+        return sb.toString();
+    }
+
+    private static List<IntRange> parseRanges(String expr) {
+        if (expr == null) return List.of();
+        String s = expr.trim();
+        if (s.isEmpty()) return List.of();
+
+        String[] parts = s.split(",");
+        List<IntRange> ranges = new ArrayList<>();
+
+        for (String raw : parts) {
+            String p = raw.trim();
+            if (p.isEmpty()) continue;
+
+            int dash = p.indexOf('-');
+            if (dash >= 0) {
+                String a0 = p.substring(0, dash).trim();
+                String b0 = p.substring(dash + 1).trim();
+                try {
+                    int a = Integer.parseInt(a0);
+                    int b = Integer.parseInt(b0);
+                    ranges.add(new IntRange(Math.min(a, b), Math.max(a, b)));
+                } catch (Exception ignored) { }
+            } else {
+                try {
+                    int v = Integer.parseInt(p);
+                    ranges.add(new IntRange(v, v));
+                } catch (Exception ignored) { }
+            }
+        }
+
+        if (ranges.isEmpty()) return ranges;
+
+        ranges.sort(Comparator.comparingInt(IntRange::from));
+        List<IntRange> merged = new ArrayList<>();
+        for (IntRange r : ranges) {
+            if (merged.isEmpty()) merged.add(r);
+            else {
+                IntRange last = merged.get(merged.size() - 1);
+                if ((long) r.from <= (long) last.to + 1) {
+                    merged.set(merged.size() - 1, new IntRange(last.from, Math.max(last.to, r.to)));
+                } else {
+                    merged.add(r);
+                }
+            }
+        }
+        return merged;
+    }
+
+    record IntRange(int from, int to) { }
+}
@@ -7,6 +7,7 @@ import com.reactive.generator.model.SensorType;
 import com.reactive.generator.repository.ReadingRepository;
 import com.reactive.generator.repository.SensorRepository;
 import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
@@ -17,14 +18,23 @@ import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Service
 public class IotEngine {
 
+    private static final double TEMP_K = 0.08;
+    private static final double TEMP_NOISE = 0.12;
+    private static final double HUM_K = 0.05;
+    private static final double HUM_NOISE = 0.10;
+
     private final SensorRepository sensorRepo;
     private final ReadingRepository readingRepo;
 
@@ -39,18 +49,39 @@ public class IotEngine {
 
     private final Scheduler emitScheduler = Schedulers.newSingle("reading-out");
 
-    private final ConcurrentHashMap<String, Disposable> running = new ConcurrentHashMap<>();
+    /**
+     * Owns sensor registration and demand bookkeeping: {@link #byDeviceNo},
+     * {@link #demand} and the watcher counters are only touched from this thread,
+     * and {@link #running} is only modified from it.
+     */
+    private final Scheduler demandScheduler = Schedulers.newSingle("sensor-demand");
+
+    private final ConcurrentHashMap<String, SensorRuntime> running = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Double> biasBySensorId = new ConcurrentHashMap<>();
 
+    private final TreeMap<Integer, List<SensorRuntime>> byDeviceNo = new TreeMap<>();
+    private final List<DeviceFilter> demand = new ArrayList<>();
+
     private final AtomicLong droppedPersist = new AtomicLong(0);
 
-    public IotEngine(SensorRepository sensorRepo, ReadingRepository readingRepo) {
+    private final boolean onDemand;
+    private final boolean persistEnabled;
+
+    public IotEngine(SensorRepository sensorRepo,
+                     ReadingRepository readingRepo,
+                     @Value("${iot.generation.on-demand:false}") boolean onDemand,
+                     @Value("${iot.persistence.enabled:true}") boolean persistEnabled) {
         this.sensorRepo = sensorRepo;
         this.readingRepo = readingRepo;
+        this.onDemand = onDemand;
+        this.persistEnabled = persistEnabled;
     }
 
     @PostConstruct
     public void start() {
+        System.out.println("[ENGINE] generation mode: " + (onDemand ? "on-demand" : "eager")
+                + ", persistence " + (persistEnabled ? "enabled" : "disabled"));
+
         Flux<Sensor> sensors = sensorRepo.findByEnabledTrue()
                 .doOnError(e -> System.out.println("[ENGINE] sensorRepo error: " + e))
                 .onErrorResume(e -> Flux.empty())
@@ -59,12 +90,15 @@ public class IotEngine {
                 .distinct(Sensor::id);
 
         sensors
+                .publishOn(demandScheduler)
                 .doOnNext(this::startIfAbsent)
                 .subscribe(
                         v -> { },
                         e -> System.out.println("[ENGINE] sensors subscribe error: " + e)
                 );
 
+        if (!persistEnabled) return;
+
         persistIn.asFlux()
                 .onBackpressureDrop(r -> droppedPersist.incrementAndGet())
                 .bufferTimeout(1000, Duration.ofSeconds(1))
@@ -78,7 +112,31 @@ public class IotEngine {
     }
 
     public Flux<Reading> readings() {
-        return readingOut.asFlux();
+        return readings(DeviceFilter.all());
+    }
+
+    /**
+     * Readings of devices accepted by {@code filter}. In on-demand mode the
+     * subscription keeps matching sensors generating for as long as it is active.
+     */
+    public Flux<Reading> readings(DeviceFilter filter) {
+        Flux<Reading> out = filter.matchesAll()
+                ? readingOut.asFlux()
+                : readingOut.asFlux().filter(r -> filter.matches(r.deviceId()));
+        if (!tracksDemand()) return out;
+
+        return out
+                .doOnSubscribe(sub -> demandScheduler.schedule(() -> addDemand(filter)))
+                .doFinally(sig -> demandScheduler.schedule(() -> removeDemand(filter)));
+    }
+
+    boolean isKnown(String sensorId) {
+        return running.containsKey(sensorId);
+    }
+
+    boolean isTicking(String sensorId) {
+        SensorRuntime rt = running.get(sensorId);
+        return rt != null && rt.isTicking();
     }
 
     public Flux<Sensor> listSensors() {
@@ -100,6 +158,7 @@ public class IotEngine {
 
     public Mono<Void> deleteSensor(String sensorId) {
         return Mono.fromRunnable(() -> stopRuntime(sensorId))
+                .subscribeOn(demandScheduler)
                 .then(sensorRepo.deleteById(sensorId))
                 .then();
     }
@@ -108,46 +167,117 @@ public class IotEngine {
         return Mono.fromSupplier(() -> biasBySensorId.merge(sensorId, delta, Double::sum));
     }
 
+    private boolean tracksDemand() {
+        return onDemand && !persistEnabled;
+    }
+
     private void startIfAbsent(Sensor s) {
         if (!s.enabled()) return;
         if (s.id() == null) return;
+        if (running.containsKey(s.id())) return;
 
-        running.computeIfAbsent(s.id(), id -> {
-            System.out.println("[ENGINE] start sensor stream: id=" + id + " type=" + s.type());
+        SensorRuntime rt = new SensorRuntime(s);
+        running.put(s.id(), rt);
+        index(rt);
 
-            return sensorToReadings(s)
-                    .publishOn(emitScheduler)
-                    .doOnNext(r -> {
-                        var res = readingOut.tryEmitNext(r);
-                        if (res.isFailure()) {
-                            System.out.println("[ENGINE] realtime emit failed: " + res + " reading=" + r);
-                        }
-
-                        var pres = persistIn.tryEmitNext(r);
-                        if (pres.isFailure()) {
-                            long n = droppedPersist.incrementAndGet();
-                            if (n % 10_000 == 0) {
-                                System.out.println("[ENGINE] persist drop total=" + n + " last=" + pres);
-                            }
-                        }
-                    })
-                    .doOnError(e -> System.out.println("[ENGINE] sensor pipeline error: " + e))
-                    .subscribe(
-                            v -> { },
-                            e -> System.out.println("[ENGINE] sensor " + id + " subscribe error: " + e)
-                    );
-        });
+        if (tracksDemand()) {
+            for (DeviceFilter f : demand) {
+                if (matches(f, rt)) rt.watchers++;
+            }
+        }
+
+        boolean ticking = !tracksDemand() || rt.watchers > 0;
+        System.out.println("[ENGINE] start sensor stream: id=" + s.id() + " type=" + s.type()
+                + (ticking ? "" : " (idle until observed)"));
+        if (ticking) rt.resume();
     }
 
     private void stopRuntime(String sensorId) {
-        Disposable d = running.remove(sensorId);
-        if (d != null) {
+        SensorRuntime rt = running.remove(sensorId);
+        if (rt != null) {
             System.out.println("[ENGINE] stop sensor stream: id=" + sensorId);
-            d.dispose();
+            unindex(rt);
+            rt.pause();
         }
         biasBySensorId.remove(sensorId);
     }
 
+    private void addDemand(DeviceFilter filter) {
+        demand.add(filter);
+        int[] resumed = {0};
+        forEachMatching(filter, rt -> {
+            if (rt.watchers++ == 0) {
+                rt.resume();
+                resumed[0]++;
+            }
+        });
+        System.out.println("[ENGINE] demand +[" + filter + "] resumed=" + resumed[0]
+                + " subscribers=" + demand.size());
+    }
+
+    private void removeDemand(DeviceFilter filter) {
+        demand.remove(filter);
+        int[] paused = {0};
+        forEachMatching(filter, rt -> {
+            if (--rt.watchers == 0) {
+                rt.pause();
+                paused[0]++;
+            }
+        });
+        System.out.println("[ENGINE] demand -[" + filter + "] paused=" + paused[0]
+                + " subscribers=" + demand.size());
+    }
+
+    /** Visits only the sensors {@code filter} covers, via the deviceId index. */
+    private void forEachMatching(DeviceFilter filter, Consumer<SensorRuntime> action) {
+        if (filter.matchesAll()) {
+            running.values().forEach(action);
+            return;
+        }
+        for (DeviceFilter.IntRange range : filter.ranges()) {
+            for (List<SensorRuntime> sameNo : byDeviceNo.subMap(range.from(), true, range.to(), true).values()) {
+                sameNo.forEach(action);
+            }
+        }
+    }
+
+    private static boolean matches(DeviceFilter filter, SensorRuntime rt) {
+        if (filter.matchesAll()) return true;
+        return rt.deviceNo != null && filter.matches(rt.deviceNo);
+    }
+
+    private void index(SensorRuntime rt) {
+        if (rt.deviceNo == null) return;
+        byDeviceNo.computeIfAbsent(rt.deviceNo, no -> new ArrayList<>(1)).add(rt);
+    }
+
+    private void unindex(SensorRuntime rt) {
+        if (rt.deviceNo == null) return;
+        List<SensorRuntime> sameNo = byDeviceNo.get(rt.deviceNo);
+        if (sameNo == null) return;
+        for (Iterator<SensorRuntime> it = sameNo.iterator(); it.hasNext(); ) {
+            if (it.next() == rt) it.remove();
+        }
+        if (sameNo.isEmpty()) byDeviceNo.remove(rt.deviceNo);
+    }
+
+    private void emit(Reading r) {
+        var res = readingOut.tryEmitNext(r);
+        if (res.isFailure()) {
+            System.out.println("[ENGINE] realtime emit failed: " + res + " reading=" + r);
+        }
+
+        if (!persistEnabled) return;
+
+        var pres = persistIn.tryEmitNext(r);
+        if (pres.isFailure()) {
+            long n = droppedPersist.incrementAndGet();
+            if (n % 10_000 == 0) {
+                System.out.println("[ENGINE] persist drop total=" + n + " last=" + pres);
+            }
+        }
+    }
+
     private Mono<Void> saveBatchSafely(List<Reading> batch) {
         return readingRepo.saveAll(Flux.fromIterable(batch).map(this::toEntity))
                 .then()
@@ -161,47 +291,99 @@ public class IotEngine {
         return new ReadingEntity(null, r.sensorId(), r.deviceId(), r.type(), r.ts(), r.value());
     }
 
-    private record State(double temp, double hum, int motion, int burstLeft) { }
+    record State(double temp, double hum, int motion, int burstLeft) { }
+
+    /**
+     * Per-sensor generator. While paused it keeps its last state and tick time;
+     * on resume the random walk jumps over the missed ticks in closed form, so a
+     * sensor nobody watched looks as if it had been running all along.
+     */
+    private final class SensorRuntime {
+        private final Sensor sensor;
+        private final Integer deviceNo;
+        private final double baseTemp;
+        private final double baseHum;
+        private final long periodNanos;
+
+        /** Active demand filters covering this sensor; demand thread only. */
+        private int watchers;
+
+        private State state;
+        private long lastTickNanos;
+        private Disposable ticker;
+
+        SensorRuntime(Sensor s) {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            this.sensor = s;
+            this.deviceNo = DeviceFilter.deviceNo(s.deviceId());
+            this.baseTemp = clamp(24 + rnd.nextDouble(-3, 3), 15, 35);
+            this.baseHum = clamp(60 + rnd.nextDouble(-4, 4), 50, 70);
+            this.periodNanos = Math.max(1, s.period().toNanos());
+            this.state = new State(baseTemp, baseHum, 0, 0);
+            this.lastTickNanos = System.nanoTime();
+        }
 
-    private Flux<Reading> sensorToReadings(Sensor s) {
-        if (!s.enabled()) return Flux.empty();
+        synchronized boolean isTicking() {
+            return ticker != null;
+        }
 
-        ThreadLocalRandom rnd = ThreadLocalRandom.current();
-        double baseTemp = clamp(24 + rnd.nextDouble(-3, 3), 15, 35);
-        double baseHum = clamp(60 + rnd.nextDouble(-4, 4), 50, 70);
+        synchronized void resume() {
+            if (ticker != null) return;
 
-        State init = new State(baseTemp, baseHum, 0, 0);
+            long missed = (System.nanoTime() - lastTickNanos) / periodNanos;
+            if (missed > 0) {
+                state = fastForward(state, baseTemp, baseHum, missed);
+                lastTickNanos += missed * periodNanos;
+            }
 
-        return Flux.interval(s.period())
-                .onBackpressureLatest()
-                .scan(init, (st, tick) -> evolve(st, baseTemp, baseHum))
-                .skip(1)
-                .map(st -> {
-                    double raw = valueByType(s.type(), st);
-                    double bias = biasBySensorId.getOrDefault(s.id(), 0.0);
-                    double v = raw + bias;
+            String id = sensor.id();
+            ticker = Flux.interval(sensor.period())
+                    .onBackpressureLatest()
+                    .map(tick -> tick())
+                    .onErrorResume(e -> {
+                        System.out.println("[ENGINE] sensor " + id + " stream error: " + e);
+                        return Flux.empty();
+                    })
+                    .publishOn(emitScheduler)
+                    .doOnNext(IotEngine.this::emit)
+                    .doOnError(e -> System.out.println("[ENGINE] sensor pipeline error: " + e))
+                    .subscribe(
+                            v -> { },
+                            e -> System.out.println("[ENGINE] sensor " + id + " subscribe error: " + e)
+                    );
+        }
 
-                    if (s.type() == SensorType.THERMOMETER) v = clamp(v, 15, 35);
-                    if (s.type() == SensorType.HUMIDITY) v = clamp(v, 0, 100);
-                    if (s.type() == SensorType.MOTION) v = (v >= 0.5) ? 1 : 0;
+        synchronized void pause() {
+            if (ticker == null) return;
+            ticker.dispose();
+            ticker = null;
+        }
 
-                    return new Reading(
-                            s.id(),
-                            s.deviceId(),
-                            s.type(),
-                            Instant.now(),
-                            v
-                    );
-                })
-                .onErrorResume(e -> {
-                    System.out.println("[ENGINE] sensor " + s.id() + " stream error: " + e);
-                    return Flux.empty();
-                });
+        private synchronized Reading tick() {
+            state = evolve(state, baseTemp, baseHum);
+            lastTickNanos = System.nanoTime();
+
+            double raw = valueByType(sensor.type(), state);
+            double bias = biasBySensorId.getOrDefault(sensor.id(), 0.0);
+            double v = raw + bias;
+
+            if (sensor.type() == SensorType.THERMOMETER) v = clamp(v, 15, 35);
+            if (sensor.type() == SensorType.HUMIDITY) v = clamp(v, 0, 100);
+            if (sensor.type() == SensorType.MOTION) v = (v >= 0.5) ? 1 : 0;
+
+            return new Reading(
+                    sensor.id(),
+                    sensor.deviceId(),
+                    sensor.type(),
+                    Instant.now(),
+                    v
+            );
+        }
     }
 
-    private State evolve(State st, double baseTemp, double baseHum) {
-        double nextTemp = clamp(stepToward(st.temp, baseTemp, 0.08, 0.12), 15, 35);
-        double nextHum  = clamp(stepToward(st.hum,  baseHum,  0.05, 0.10), 50, 70);
+    private static State evolve(State st, double baseTemp, double baseHum) {
+        double nextTemp = clamp(stepToward(st.temp, baseTemp, TEMP_K, TEMP_NOISE), 15, 35);
+        double nextHum  = clamp(stepToward(st.hum,  baseHum,  HUM_K,  HUM_NOISE),  50, 70);
 
         ThreadLocalRandom r = ThreadLocalRandom.current();
         int burstLeft = st.burstLeft;
@@ -223,6 +405,22 @@ public class IotEngine {
         return new State(nextTemp, nextHum, motion, burstLeft);
     }
 
+    /**
+     * State after {@code n} evolve() steps in O(1). Temperature and humidity are
+     * linear mean-reverting walks, so their n-step distribution is Gaussian with a
+     * known mean and variance. Motion bursts last at most 6 ticks and otherwise
+     * carry no memory, so only an unfinished burst needs carrying over.
+     */
+    static State fastForward(State st, double baseTemp, double baseHum, long n) {
+        double temp = clamp(jumpToward(st.temp, baseTemp, TEMP_K, TEMP_NOISE, n), 15, 35);
+        double hum  = clamp(jumpToward(st.hum,  baseHum,  HUM_K,  HUM_NOISE,  n), 50, 70);
+
+        if (n < st.burstLeft) {
+            return new State(temp, hum, 1, st.burstLeft - (int) n);
+        }
+        return new State(temp, hum, 0, 0);
+    }
+
     private double valueByType(SensorType type, State st) {
         return switch (type) {
             case THERMOMETER -> round1(st.temp);
@@ -236,6 +434,14 @@ public class IotEngine {
         return value + k * (target - value) + noise;
     }
 
+    private static double jumpToward(double value, double target, double k, double noiseStd, long n) {
+        double a = 1 - k;
+        double an = Math.pow(a, n);
+        double mean = target + (value - target) * an;
+        double variance = noiseStd * noiseStd * (1 - an * an) / (1 - a * a);
+        return mean + ThreadLocalRandom.current().nextGaussian() * Math.sqrt(variance);
+    }
+
     private static double round1(double x) {
         return Math.round(x * 10.0) / 10.0;
     }
@@ -0,0 +1,163 @@
+package com.reactive.generator.service;
+
+import com.reactive.generator.model.Reading;
+import com.reactive.generator.model.Sensor;
+import com.reactive.generator.model.SensorType;
+import com.reactive.generator.repository.ReadingRepository;
+import com.reactive.generator.repository.SensorRepository;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IotEngineTest {
+
+    private static final Duration PERIOD = Duration.ofMillis(20);
+    private static final Duration SETTLE = Duration.ofMillis(200);
+
+    private static final Sensor SENSOR_5 =
+            new Sensor("s5", "t5", SensorType.THERMOMETER, "5", PERIOD, true);
+    private static final Sensor SENSOR_50 =
+            new Sensor("s50", "t50", SensorType.HUMIDITY, "50", PERIOD, true);
+
+    @Test
+    void onDemandSensorIdlesUntilMatchingSubscription() throws InterruptedException {
+        IotEngine engine = startEngine(true, false, SENSOR_5, SENSOR_50);
+        awaitSensors(engine, SENSOR_5, SENSOR_50);
+
+        Thread.sleep(SETTLE.toMillis());
+        assertFalse(engine.isTicking("s5"));
+        assertFalse(engine.isTicking("s50"));
+
+        List<Reading> got = new CopyOnWriteArrayList<>();
+        Disposable other = engine.readings(DeviceFilter.parse("20-30")).subscribe(got::add);
+        Thread.sleep(SETTLE.toMillis());
+        assertFalse(engine.isTicking("s5"));
+        assertFalse(engine.isTicking("s50"));
+
+        Disposable sub = engine.readings(DeviceFilter.parse("1-10")).subscribe(got::add);
+        await(() -> engine.isTicking("s5"));
+        await(() -> !got.isEmpty());
+        assertFalse(engine.isTicking("s50"));
+        assertTrue(got.stream().allMatch(r -> "5".equals(r.deviceId())));
+
+        sub.dispose();
+        other.dispose();
+    }
+
+    @Test
+    void cancelPausesOnlyWhenLastOverlappingSubscriptionEnds() throws InterruptedException {
+        IotEngine engine = startEngine(true, false, SENSOR_5, SENSOR_50);
+        awaitSensors(engine, SENSOR_5, SENSOR_50);
+
+        Disposable wide = engine.readings(DeviceFilter.parse("1-100")).subscribe();
+        Disposable narrow = engine.readings(DeviceFilter.parse("5")).subscribe();
+        await(() -> engine.isTicking("s5") && engine.isTicking("s50"));
+
+        wide.dispose();
+        await(() -> !engine.isTicking("s50"));
+        Thread.sleep(SETTLE.toMillis());
+        assertTrue(engine.isTicking("s5"));
+
+        narrow.dispose();
+        await(() -> !engine.isTicking("s5"));
+    }
+
+    @Test
+    void matchAllSubscriptionResumesNonNumericDevices() {
+        Sensor named = new Sensor("sx", "tx", SensorType.MOTION, "lobby", PERIOD, true);
+        IotEngine engine = startEngine(true, false, named);
+        awaitSensors(engine, named);
+
+        Disposable byRange = engine.readings(DeviceFilter.parse("1-1000")).subscribe();
+        Disposable all = engine.readings().subscribe();
+        await(() -> engine.isTicking("sx"));
+
+        all.dispose();
+        await(() -> !engine.isTicking("sx"));
+        byRange.dispose();
+    }
+
+    @Test
+    void eagerWhenOnDemandDisabled() throws InterruptedException {
+        IotEngine engine = startEngine(false, false, SENSOR_5);
+        await(() -> engine.isTicking("s5"));
+
+        Disposable sub = engine.readings(DeviceFilter.parse("5")).subscribe();
+        sub.dispose();
+        Thread.sleep(SETTLE.toMillis());
+        assertTrue(engine.isTicking("s5"));
+    }
+
+    @Test
+    void eagerWhenPersistenceEnabled() throws InterruptedException {
+        IotEngine engine = startEngine(true, true, SENSOR_5);
+        await(() -> engine.isTicking("s5"));
+
+        Disposable sub = engine.readings(DeviceFilter.parse("5")).subscribe();
+        sub.dispose();
+        Thread.sleep(SETTLE.toMillis());
+        assertTrue(engine.isTicking("s5"));
+    }
+
+    @Test
+    void fastForwardConvergesToBase() {
+        IotEngine.State far = new IotEngine.State(35, 70, 1, 4);
+        IotEngine.State st = IotEngine.fastForward(far, 20, 55, 10_000);
+
+        assertEquals(20, st.temp(), 1.0);
+        assertEquals(55, st.hum(), 1.0);
+        assertEquals(0, st.motion());
+        assertEquals(0, st.burstLeft());
+
+        IotEngine.State midBurst = IotEngine.fastForward(far, 20, 55, 1);
+        assertEquals(1, midBurst.motion());
+        assertEquals(3, midBurst.burstLeft());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IotEngine startEngine(boolean onDemand, boolean persist, Sensor... sensors) {
+        SensorRepository sensorRepo = mock(SensorRepository.class);
+        ReadingRepository readingRepo = mock(ReadingRepository.class);
+        when(sensorRepo.findByEnabledTrue()).thenReturn(Flux.just(sensors));
+        when(readingRepo.saveAll(any(Publisher.class))).thenReturn(Flux.empty());
+
+        IotEngine engine = new IotEngine(sensorRepo, readingRepo, onDemand, persist);
+        engine.start();
+        return engine;
+    }
+
+    private static void awaitSensors(IotEngine engine, Sensor... sensors) {
+        await(() -> {
+            for (Sensor s : sensors) {
+                if (!engine.isKnown(s.id())) return false;
+            }
+            return true;
+        });
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(3).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("condition not met in time");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}